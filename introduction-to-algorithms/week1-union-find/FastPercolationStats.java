@@ -0,0 +1,266 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import edu.princeton.cs.algs4.Stopwatch;
+
+/**
+ * Monte-Carlo simulation for percolation model without per-trial objects.
+ * It gives the same estimate as PercolationStats, but is faster for small grids, where PercolationStats spends
+ * a noticeable part of the time on creating Percolation and WeightedQuickUnionUF objects for every trial.
+ *
+ * Trials are run one after another on the same plain arrays of N^2 elements, which are allocated once and reset
+ * before every trial. All the work is done in one tight loop over these arrays without creating objects or calling
+ * union-find objects.
+ *
+ * Union-find uses union by size and path halving. Like in Percolation, every root site keeps in its mask if its tree
+ * is connected to top and bottom rows, so system percolates when root of just opened site is connected to both.
+ * Random blocked site is chosen by one step of Fisher-Yates shuffle of the trial's sites, so no random numbers are
+ * wasted on already opened sites.
+ *
+ * Statistics of the results are computed by PercolationStats.
+ */
+public class FastPercolationStats
+{
+    private PercolationStats stats; // Statistics of trial results
+
+    private int gridSize;       // Model grid size (N)
+    private int sites;          // Number of sites (N^2)
+    private int[] parent;       // Union-find parent of every site
+    private int[] treeSize;     // Union-find tree size of every root site
+    private int[] order;        // Sites in opening order, opened sites are moved to the beginning of the array
+    private byte[] mask;        // Site status, bits have the same meaning as in Percolation
+                                // 1st bit - 1 if site is open
+                                // 3rd bit - 1 if site is connected to top row (checked on root sites only)
+                                // 4th bit - 1 if site is connected to bottom row (checked on root sites only)
+
+    /**
+     * Creates new Monte-Carlo simulation of percolation model (N-by-N grid).
+     * The system makes several trials to get more accurate results.
+     * @param n percolation model grid size
+     * @param trials amount of trials
+     * @throws IllegalArgumentException if grid size or amount of trials is less or equal to 0
+     */
+    public FastPercolationStats(int n, int trials)
+    {
+        if (n <= 0)
+        {
+            throw new IllegalArgumentException("Grid size should be more than 0");
+        }
+        if (trials <= 0)
+        {
+            throw new IllegalArgumentException("Trials count should be more than 0");
+        }
+
+        gridSize = n;
+        sites = n*n;
+        parent = new int[sites];
+        treeSize = new int[sites];
+        order = new int[sites];
+        mask = new byte[sites];
+
+        double[] results = new double[trials];  // Initialize new array for every trial result
+        for (int i = 0; i < trials; i++)
+        {
+            results[i] = testPercolation();     // Calculate simulation result for every trial
+        }
+        stats = new PercolationStats(results);
+    }
+
+    /**
+     * Performs Monte-Carlo simulation of percolation model.
+     * @return the fraction of sites that are opened when system percolates
+     */
+    private double testPercolation()
+    {
+        for (int i = 0; i < sites; i++)                 // All sites are blocked
+        {
+            parent[i] = i;
+            treeSize[i] = 1;
+            order[i] = i;
+            mask[i] = 0;
+        }
+
+        for (int opened = 0; ; opened++)
+        {
+            int swap = opened + StdRandom.uniform(sites - opened);  // Pick random blocked site
+            int site = order[swap];
+            order[swap] = order[opened];
+            order[opened] = site;
+
+            if (openSite(site))                         // Stop when system percolates
+            {
+                return (double) (opened + 1) / sites;
+            }
+        }
+    }
+
+    /**
+     * Opens site and connects it with open neighbours
+     * @param index site index (from 0 to N^2-1)
+     * @return true if system percolates after the site is opened
+     */
+    private boolean openSite(int index)
+    {
+        int n = gridSize;
+        int row = index / n;
+        int col = index - row * n;
+
+        byte status = 1;                                // 'Open' byte
+        if (row == 0)
+        {
+            status |= 4;                                // 'Connected to top' byte
+        }
+        if (row == n - 1)
+        {
+            status |= 8;                                // 'Connected to bottom' byte
+        }
+        mask[index] = status;
+
+        int root = index;                               // Just opened site is a root of its own tree
+        if (row != 0 && mask[index - n] != 0)           // Connect open neighbours (up, down, left, right)
+        {
+            root = union(root, index - n);
+        }
+        if (row != n - 1 && mask[index + n] != 0)
+        {
+            root = union(root, index + n);
+        }
+        if (col != 0 && mask[index - 1] != 0)
+        {
+            root = union(root, index - 1);
+        }
+        if (col != n - 1 && mask[index + 1] != 0)
+        {
+            root = union(root, index + 1);
+        }
+        return (mask[root] & 12) == 12;                 // Check if root is connected to top and bottom rows
+    }
+
+    /**
+     * Finds root of the site, halving the path to the root
+     * @param p site index
+     * @return root site index
+     */
+    private int find(int p)
+    {
+        while (parent[p] != p)
+        {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * Connects the tree with the tree of the site, smaller tree is linked to the root of the larger one.
+     * Merged root keeps 'Connected to top' and 'Connected to bottom' bytes of both roots.
+     * @param root root site index of the first tree
+     * @param q site index of the second tree
+     * @return root site index of the merged tree
+     */
+    private int union(int root, int q)
+    {
+        int rootQ = find(q);
+        if (root == rootQ)
+        {
+            return root;
+        }
+        if (treeSize[root] < treeSize[rootQ])           // Make root the root of the larger tree
+        {
+            int temp = root;
+            root = rootQ;
+            rootQ = temp;
+        }
+        parent[rootQ] = root;
+        treeSize[root] += treeSize[rootQ];
+        mask[root] = (byte) (mask[root] | mask[rootQ]);
+        return root;
+    }
+
+    /**
+     * Returns sample mean of percolation threshold
+     * @return sample mean
+     */
+    public double mean()
+    {
+        return stats.mean();
+    }
+
+    /**
+     * Returns standard deviation of percolation threshold
+     * @return sample standard deviation
+     */
+    public double stddev()
+    {
+        return stats.stddev();
+    }
+
+    /**
+     * Returns low endpoint of 95% confidence interval
+     * @return low endpoint of 95% confidence interval
+     */
+    public double confidenceLo()
+    {
+        return stats.confidenceLo();
+    }
+
+    /**
+     * Returns high endpoint of 95% confidence interval
+     * @return high endpoint of 95% confidence interval
+     */
+    public double confidenceHi()
+    {
+        return stats.confidenceHi();
+    }
+
+    /**
+     * Test method. It takes two command-line arguments: grid size and amount of trials, performs trials by
+     * PercolationStats and by this engine, and prints results and trials per second of both of them.
+     * Both engines are warmed up first, and then measured in four rounds in alternating order.
+     * @param args command-line arguments. args[0] should be a grid size, args[1] should be an amount of trials
+     * @throws IllegalArgumentException if less than 2 command-line arguments are provided
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            throw new IllegalArgumentException("Please, provide grid size and trials count as arguments");
+        }
+        int gridSize = Integer.parseInt(args[0]);   // Parse grid size
+        int trials = Integer.parseInt(args[1]);     // Parse amount of trials
+
+        int warmUpTrials = Math.max(1, trials / 10);
+        new PercolationStats(gridSize, warmUpTrials);   // Warm up both engines before measuring
+        new FastPercolationStats(gridSize, warmUpTrials);
+
+        PercolationStats stats = null;
+        FastPercolationStats fast = null;
+        double time = 0;                            // Alternate the order of measurements, so none of the
+        double fastTime = 0;                        // engines is always measured first
+        for (int round = 0; round < 4; round++)
+        {
+            Stopwatch watch;
+            if (round % 2 == 0)
+            {
+                watch = new Stopwatch();
+                stats = new PercolationStats(gridSize, trials);
+                time += watch.elapsedTime();
+            }
+            watch = new Stopwatch();
+            fast = new FastPercolationStats(gridSize, trials);
+            fastTime += watch.elapsedTime();
+            if (round % 2 != 0)
+            {
+                watch = new Stopwatch();
+                stats = new PercolationStats(gridSize, trials);
+                time += watch.elapsedTime();
+            }
+        }
+
+        StdOut.println("PercolationStats:     mean = " + stats.mean() + ", stddev = " + stats.stddev()
+                + ", trials per second = " + 4 * trials / time);
+        StdOut.println("FastPercolationStats: mean = " + fast.mean() + ", stddev = " + fast.stddev()
+                + ", trials per second = " + 4 * trials / fastTime);
+        StdOut.println("speedup = " + time / fastTime);
+        StdOut.println("95% confidence interval = " + fast.confidenceLo() + ", " + fast.confidenceHi());
+    }
+}
\ No newline at end of file
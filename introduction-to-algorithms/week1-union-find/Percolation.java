@@ -9,6 +9,9 @@ import edu.princeton.cs.algs4.WeightedQuickUnionUF;
  *
  * The constructor takes time proportional to N^2. All methods take constant time plus a constant number of calls
  * to union-find methods union(), find(), connected() and count().
+ *
+ * Union-find operations and every change of site mask and percolation flag go through package-private methods,
+ * so RollbackPercolation can replace union-find and log the changes. Logged changes are undone by restore methods.
  */
 public class Percolation
 {
@@ -28,13 +31,27 @@ public class Percolation
      * @throws NullPointerException if grid size is less or equal to 0
      */
     public Percolation(int n)
+    {
+        this(n, true);
+    }
+
+    /**
+     * Creates new percolation system model
+     * @param n grid size
+     * @param createTree false if subclass uses its own union-find instead of WeightedQuickUnionUF
+     * @throws IllegalArgumentException if grid size is less or equal to 0
+     */
+    Percolation(int n, boolean createTree)
     {
         if (n <= 0)
         {
             throw new IllegalArgumentException("Grid size should be more than 0");
         }
 
-        mainTree = new WeightedQuickUnionUF(n*n); // Initialize tree that contains sites from n-by-n grid
+        if (createTree)
+        {
+            mainTree = new WeightedQuickUnionUF(n*n); // Initialize tree that contains sites from n-by-n grid
+        }
         gridSize = n;                             // Save grid size
 
         mask = new byte[n*n];                     // Initialize mask array by 0 values
@@ -56,7 +73,7 @@ public class Percolation
         int index = grid2array(i, j);                   // Recalculate grid row and column index to array index
 
         byte status = 1;                                // Create status var and set 'Open' byte as 1 (0b0001)
-        mask[index] = (byte) (mask[index] | status);    // Set 'Open' byte value on current site mask
+        setMask(index, (byte) (mask[index] | status));  // Set 'Open' byte value on current site mask
 
         if (index >= 0 && index <= gridSize-1)          // If site is in top row
         {
@@ -87,10 +104,10 @@ public class Percolation
         }
 
         byte rootStatus = (byte) (mask[index] | status);    // Merge result status and current site status
-        mask[mainTree.find(index)] = rootStatus;            // Set result status on root site
-        if (isConnectedToBottom(rootStatus) && isConnectedToTop(rootStatus))    // Check if system percolates
+        setMask(find(index), rootStatus);                   // Set result status on root site
+        if (!percolates && isConnectedToBottom(rootStatus) && isConnectedToTop(rootStatus))
         {
-            percolates = true;
+            setPercolates();                                // System percolates
         }
     }
 
@@ -106,9 +123,9 @@ public class Percolation
         if (isOpen(mask[neighbourIndex]))                    // If neighbour is open
         {
 
-            status = (byte) (status | mask[mainTree.find(neighbourIndex)]); // Find neighbour site's root in UF tree
+            status = (byte) (status | mask[find(neighbourIndex)]);  // Find neighbour site's root in UF tree
                                                             // and merge current site and root site statuses
-            mainTree.union(mainSiteIndex, neighbourIndex);  // Connect current and root sites in UF tree
+            union(mainSiteIndex, neighbourIndex);           // Connect current and root sites in UF tree
         }
         return status;
     }
@@ -140,7 +157,7 @@ public class Percolation
         {
             throw new IndexOutOfBoundsException("Impossible to open element out of grid bound");
         }
-        return isFull(mask[mainTree.find(grid2array(i, j))]);   // Recalculate grid indexes to array index
+        return isFull(mask[find(grid2array(i, j))]);    // Recalculate grid indexes to array index
                                                                 // Find root site for it and check 'Full' byte
     }
 
@@ -153,6 +170,73 @@ public class Percolation
         return percolates;
     }
 
+    /**
+     * Finds root of the site in union-find tree
+     * @param index site index (in array)
+     * @return root site index
+     */
+    int find(int index)
+    {
+        return mainTree.find(index);
+    }
+
+    /**
+     * Connects two sites in union-find tree
+     * @param first first site index (in array)
+     * @param second second site index (in array)
+     */
+    void union(int first, int second)
+    {
+        mainTree.union(first, second);
+    }
+
+    /**
+     * Changes site mask
+     * @param index site index (in array)
+     * @param value new mask value
+     */
+    void setMask(int index, byte value)
+    {
+        mask[index] = value;
+    }
+
+    /**
+     * Marks system as percolating
+     */
+    void setPercolates()
+    {
+        percolates = true;
+    }
+
+    /**
+     * Returns site mask
+     * @param index site index (in array)
+     * @return mask value
+     */
+    byte maskAt(int index)
+    {
+        return mask[index];
+    }
+
+    /**
+     * Restores previous site mask, it is not a change that should be logged
+     * @param index site index (in array)
+     * @param value previous mask value
+     */
+    void restoreMask(int index, byte value)
+    {
+        mask[index] = value;
+    }
+
+    /**
+     * Restores previous percolation flag, it is not a change that should be logged
+     * @param value previous percolation flag
+     */
+    void restorePercolates(boolean value)
+    {
+        percolates = value;
+    }
+
     /**
      * Recalculates grid row and column indexes to array index
      * @param row row index (from 1 to grid size inclusively)
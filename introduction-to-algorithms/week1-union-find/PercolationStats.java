@@ -42,6 +42,16 @@ public class PercolationStats
         }
     }
 
+    /**
+     * Creates statistics of trials that were performed by another simulation engine
+     * @param results estimate threshold of every trial
+     */
+    PercolationStats(double[] results)
+    {
+        this.results = results;
+        this.trials = results.length;
+    }
+
     /**
      * Performs Monte-Carlo simulation of percolation model.
      * @param gridSize percolation model grid size
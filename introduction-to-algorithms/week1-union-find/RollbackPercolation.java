@@ -0,0 +1,264 @@
+/**
+ * Model of percolation system (N-by-N grid of sites) that supports rollback of opened sites.
+ * It is useful to check "what if" scenarios: save checkpoint, open a batch of sites, check if the system percolates
+ * and undo changes back to the checkpoint instead of rebuilding the whole model.
+ *
+ * Model reuses site logic of Percolation and replaces its union-find by union-find with union by rank and without
+ * path compression, so every union changes at most two values and the change can be undone. While at least one
+ * checkpoint is held, every change of union-find parent and rank, site mask and percolation flag is kept in the
+ * change log. When the last checkpoint is released, the log is truncated.
+ *
+ * The constructor takes time proportional to N^2. Methods open() and isFull() take time proportional to log N.
+ * Method rollback() takes time proportional to the number of sites that were opened after the checkpoint.
+ */
+public class RollbackPercolation extends Percolation
+{
+    private static final byte PARENT = 0;       // Change log entry kinds: union-find parent change,
+    private static final byte RANK = 1;         // union-find rank change,
+    private static final byte MASK = 2;         // site mask change
+    private static final byte PERCOLATES = 3;   // and percolation flag change
+    private static final int LOG_CAPACITY = 16; // Initial change log capacity
+
+    private int[] parent;                   // Union-find parent of every site
+    private byte[] rank;                    // Union-find rank of every root site
+
+    private byte[] logKinds;                // Change log: kind of every change,
+    private int[] logIndexes;               // index of changed site
+    private int[] logValues;                // and previous value
+    private int logSize;                    // Number of changes in the log
+
+    private int[] checkpoints;              // Stack of held checkpoints: unique id of every checkpoint
+    private int[] checkpointLogSizes;       // and log size when it was saved
+    private int checkpointCount;            // Number of held checkpoints
+    private int nextCheckpoint;             // Id of the next checkpoint
+
+    /**
+     * Creates new percolation system model
+     * @param n grid size
+     * @throws IllegalArgumentException if grid size is less or equal to 0
+     */
+    public RollbackPercolation(int n)
+    {
+        super(n, false);                          // Site logic of Percolation without WeightedQuickUnionUF
+
+        rank = new byte[n*n];
+        parent = new int[n*n];
+        for (int i = 0; i < n*n; i++)             // Every site is a root of its own tree
+        {
+            parent[i] = i;
+        }
+
+        logKinds = new byte[LOG_CAPACITY];
+        logIndexes = new int[LOG_CAPACITY];
+        logValues = new int[LOG_CAPACITY];
+        checkpoints = new int[LOG_CAPACITY];
+        checkpointLogSizes = new int[LOG_CAPACITY];
+    }
+
+    /**
+     * Saves checkpoint. Changes made after this call can be undone by rollback() until the checkpoint is released.
+     * @return checkpoint, unique for this model
+     */
+    public int checkpoint()
+    {
+        if (checkpointCount == checkpoints.length)      // Double checkpoints stack capacity if it is full
+        {
+            int[] newCheckpoints = new int[2 * checkpointCount];
+            int[] newLogSizes = new int[2 * checkpointCount];
+            System.arraycopy(checkpoints, 0, newCheckpoints, 0, checkpointCount);
+            System.arraycopy(checkpointLogSizes, 0, newLogSizes, 0, checkpointCount);
+            checkpoints = newCheckpoints;
+            checkpointLogSizes = newLogSizes;
+        }
+        checkpoints[checkpointCount] = nextCheckpoint;
+        checkpointLogSizes[checkpointCount] = logSize;
+        checkpointCount++;
+        return nextCheckpoint++;
+    }
+
+    /**
+     * Undoes all changes made after the checkpoint. The checkpoint stays held, newer checkpoints are released.
+     * @param checkpoint held checkpoint returned by checkpoint()
+     * @throws IllegalArgumentException if checkpoint is not held
+     */
+    public void rollback(int checkpoint)
+    {
+        int position = stackPosition(checkpoint);
+        if (position < 0)
+        {
+            throw new IllegalArgumentException("Unknown checkpoint " + checkpoint);
+        }
+
+        checkpointCount = position + 1;                 // Release newer checkpoints
+        int checkpointLogSize = checkpointLogSizes[position];
+        while (logSize > checkpointLogSize)             // Undo changes in reverse order
+        {
+            logSize--;
+            int index = logIndexes[logSize];
+            int value = logValues[logSize];
+            switch (logKinds[logSize])
+            {
+                case PARENT:
+                    parent[index] = value;
+                    break;
+                case RANK:
+                    rank[index] = (byte) value;
+                    break;
+                case MASK:
+                    restoreMask(index, (byte) value);
+                    break;
+                default:
+                    restorePercolates(value == 1);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Releases the most recent checkpoint, its changes can not be undone anymore (unless older checkpoint is held).
+     * When no checkpoints are held, the change log is truncated.
+     * @param checkpoint the most recent held checkpoint
+     * @throws IllegalArgumentException if checkpoint is not the most recent held checkpoint
+     */
+    public void release(int checkpoint)
+    {
+        if (checkpointCount == 0 || checkpoints[checkpointCount - 1] != checkpoint)
+        {
+            throw new IllegalArgumentException("Checkpoint " + checkpoint + " is not the most recent one");
+        }
+
+        checkpointCount--;
+        if (checkpointCount == 0)                       // Nothing can be rolled back, so drop the log
+        {
+            logSize = 0;
+            if (logKinds.length > LOG_CAPACITY)
+            {
+                logKinds = new byte[LOG_CAPACITY];
+                logIndexes = new int[LOG_CAPACITY];
+                logValues = new int[LOG_CAPACITY];
+            }
+        }
+    }
+
+    /**
+     * Finds held checkpoint in the checkpoints stack
+     * @param checkpoint checkpoint
+     * @return position in the stack, or -1 if checkpoint is not held
+     */
+    private int stackPosition(int checkpoint)
+    {
+        for (int i = checkpointCount - 1; i >= 0; i--)
+        {
+            if (checkpoints[i] == checkpoint)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds root of the site in union-find tree. Path compression is not used, so tree can be rolled back.
+     * @param index site index (in array)
+     * @return root site index
+     */
+    @Override
+    int find(int index)
+    {
+        while (parent[index] != index)
+        {
+            index = parent[index];
+        }
+        return index;
+    }
+
+    /**
+     * Connects two sites in union-find tree, root of the tree with lower rank is linked to the other root
+     * @param first first site index (in array)
+     * @param second second site index (in array)
+     */
+    @Override
+    void union(int first, int second)
+    {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot)
+        {
+            return;
+        }
+        if (rank[firstRoot] < rank[secondRoot])         // Make first root the one with higher rank
+        {
+            int temp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = temp;
+        }
+
+        log(PARENT, secondRoot, parent[secondRoot]);
+        parent[secondRoot] = firstRoot;
+        if (rank[firstRoot] == rank[secondRoot])        // Tree height grows only if ranks are equal
+        {
+            log(RANK, firstRoot, rank[firstRoot]);
+            rank[firstRoot]++;
+        }
+    }
+
+    /**
+     * Changes site mask and logs previous value
+     * @param index site index (in array)
+     * @param value new mask value
+     */
+    @Override
+    void setMask(int index, byte value)
+    {
+        byte previous = maskAt(index);
+        if (previous != value)
+        {
+            log(MASK, index, previous);
+            super.setMask(index, value);
+        }
+    }
+
+    /**
+     * Marks system as percolating and logs previous value
+     */
+    @Override
+    void setPercolates()
+    {
+        log(PERCOLATES, 0, percolates() ? 1 : 0);
+        super.setPercolates();
+    }
+
+    /**
+     * Adds entry to the change log if at least one checkpoint is held
+     * @param kind change kind
+     * @param index changed site index
+     * @param value previous value
+     */
+    private void log(byte kind, int index, int value)
+    {
+        if (checkpointCount == 0)                       // Nobody can roll the change back
+        {
+            return;
+        }
+        if (logSize == logKinds.length)                 // Double log capacity if it is full
+        {
+            byte[] newKinds = new byte[2 * logSize];
+            int[] newIndexes = new int[2 * logSize];
+            int[] newValues = new int[2 * logSize];
+            System.arraycopy(logKinds, 0, newKinds, 0, logSize);
+            System.arraycopy(logIndexes, 0, newIndexes, 0, logSize);
+            System.arraycopy(logValues, 0, newValues, 0, logSize);
+            logKinds = newKinds;
+            logIndexes = newIndexes;
+            logValues = newValues;
+        }
+        logKinds[logSize] = kind;
+        logIndexes[logSize] = index;
+        logValues[logSize] = value;
+        logSize++;
+    }
+
+    public static void main(String[] args)
+    {
+    }
+}
\ No newline at end of file
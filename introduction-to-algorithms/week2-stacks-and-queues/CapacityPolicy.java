@@ -0,0 +1,161 @@
+/**
+ * Capacity policy and resize statistics of array-backed queues.
+ *
+ * The array grows by growth factor when it is full. It shrinks when it is filled by 1/shrinkRatio or less, and new
+ * capacity is size * growthFactor, so shrink ratio should be more than growth factor to prevent resizing back and
+ * forth at the boundary. The array never shrinks below initial capacity and below capacity reserved by reserve().
+ *
+ * Policy counts resizes, copied bytes and peak capacity, so queues can be sized by production data.
+ */
+class CapacityPolicy
+{
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;  // Maximum array length supported by most VMs
+
+    private int initialCapacity;                            // Initial capacity, array does not shrink below it
+    private int minCapacity;                                // Reserved capacity, not less than initial capacity,
+                                                            // array does not shrink below it
+    private double growthFactor;                            // Capacity of the full array is multiplied by it
+    private double shrinkRatio;                             // Array shrinks when it is filled by 1/shrinkRatio
+
+    private long resizeCount;                               // Number of resizes
+    private long bytesCopied;                               // Number of bytes copied by resizes
+    private int peakCapacity;                               // Maximum capacity of the array
+
+    /**
+     * Creates new capacity policy
+     * @param initialCapacity initial capacity, the array never shrinks below it
+     * @param growthFactor capacity of the full array is multiplied by this factor
+     * @param shrinkRatio the array shrinks when it is filled by 1/shrinkRatio or less
+     * @throws IllegalArgumentException if initial capacity is less than 1, growth factor is not more than 1 or shrink
+     * ratio is not more than growth factor
+     */
+    CapacityPolicy(int initialCapacity, double growthFactor, double shrinkRatio)
+    {
+        if (initialCapacity < 1)
+        {
+            throw new IllegalArgumentException("Initial capacity should be more than 0");
+        }
+        if (!(growthFactor > 1d))
+        {
+            throw new IllegalArgumentException("Growth factor should be more than 1");
+        }
+        if (!(shrinkRatio > growthFactor))
+        {
+            throw new IllegalArgumentException("Shrink ratio should be more than growth factor");
+        }
+
+        this.initialCapacity = initialCapacity;
+        this.minCapacity = initialCapacity;
+        this.growthFactor = growthFactor;
+        this.shrinkRatio = shrinkRatio;
+        peakCapacity = initialCapacity;
+    }
+
+    /**
+     * Creates new policy with the same settings and empty statistics
+     * @return new policy
+     */
+    CapacityPolicy copy()
+    {
+        return new CapacityPolicy(initialCapacity, growthFactor, shrinkRatio);
+    }
+
+    /**
+     * Returns initial capacity
+     * @return initial capacity
+     */
+    int initialCapacity()
+    {
+        return initialCapacity;
+    }
+
+    /**
+     * Calculates capacity for the full array
+     * @param capacity current capacity
+     * @return new capacity
+     * @throws IllegalStateException if the array already has maximum capacity
+     */
+    int grow(int capacity)
+    {
+        if (capacity >= MAX_CAPACITY)
+        {
+            throw new IllegalStateException("Queue is full");
+        }
+        double grown = Math.ceil(capacity * growthFactor);
+        return (int) Math.min(Math.max(grown, capacity + 1d), MAX_CAPACITY);
+    }
+
+    /**
+     * Calculates capacity of the array after removal of elements
+     * @param size current number of elements
+     * @param capacity current capacity
+     * @return new capacity, or current capacity if the array should not shrink
+     */
+    int shrink(int size, int capacity)
+    {
+        if (capacity > minCapacity && size * shrinkRatio <= capacity)
+        {
+            return Math.max(minCapacity, (int) Math.ceil(size * growthFactor));
+        }
+        return capacity;
+    }
+
+    /**
+     * Reserves capacity, the array does not shrink below it until trimmed
+     * @param capacity reserved capacity
+     */
+    void reserve(int capacity)
+    {
+        minCapacity = Math.max(minCapacity, capacity);
+    }
+
+    /**
+     * Releases reserved capacity and calculates capacity of trimmed array
+     * @param size current number of elements
+     * @return trimmed capacity (not less than initial capacity)
+     */
+    int trim(int size)
+    {
+        minCapacity = initialCapacity;
+        return Math.max(size, initialCapacity);
+    }
+
+    /**
+     * Updates statistics after resize
+     * @param bytes number of copied bytes
+     * @param capacity new capacity
+     */
+    void resized(long bytes, int capacity)
+    {
+        resizeCount++;
+        bytesCopied += bytes;
+        peakCapacity = Math.max(peakCapacity, capacity);
+    }
+
+    /**
+     * Returns the number of resizes
+     * @return resizes count
+     */
+    long resizeCount()
+    {
+        return resizeCount;
+    }
+
+    /**
+     * Returns the number of bytes copied by resizes
+     * @return copied bytes
+     */
+    long bytesCopied()
+    {
+        return bytesCopied;
+    }
+
+    /**
+     * Returns maximum capacity the array ever had
+     * @return peak capacity
+     */
+    int peakCapacity()
+    {
+        return peakCapacity;
+    }
+}
\ No newline at end of file
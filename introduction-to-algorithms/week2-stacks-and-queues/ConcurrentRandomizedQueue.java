@@ -0,0 +1,544 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Implements thread-safe randomized queue.
+ * This queue implementation does not support adding {@code null} elements.
+ *
+ * Elements are split across several striped segments, every segment is guarded by its own lock. Thread adds elements
+ * to its own segment. To remove or sample random element, a segment is chosen with probability proportional to its
+ * size, and then uniformly random element is chosen in the segment. So every element of the queue has the same
+ * possibility to be chosen (if there are no concurrent modifications).
+ *
+ * Threads rarely contend with each other only if the same threads both add and remove elements. With a single
+ * producer all elements land in the producer's segment, so all consumers lock that segment.
+ *
+ * Segment sizes are published to a padded array, one cache line per segment, so reading sizes of all segments
+ * does not collide with writes of the neighbour segments' counters.
+ *
+ * Every segment has its own capacity policy (configured like in RandomizedQueue) and resize statistics, statistics
+ * of the queue are sums over all segments.
+ *
+ * Every operation takes constant amortized time plus time proportional to the number of segments.
+ * Uses {@link ThreadLocalRandom} instead of StdRandom, because StdRandom shares one generator between all threads.
+ *
+ * @param <Item> the type of elements held in this data structure
+ */
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item>
+{
+    private static final int PADDING = 16;                  // Distance between published sizes (64 bytes)
+
+    private Segment<Item>[] segments;                       // Queue segments
+    private AtomicIntegerArray sizes;                       // Published segment sizes, size of segment i is kept
+                                                            // at (i + 1) * PADDING, read without lock
+    private int mask;                                       // Bit mask to get segment index from thread hash
+
+    /**
+     * Creates new empty randomized queue with one segment per available processor
+     */
+    public ConcurrentRandomizedQueue()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates new empty randomized queue
+     * @param concurrencyLevel expected number of threads, that use the queue at the same time
+     * @throws IllegalArgumentException if concurrency level is less or equal to 0
+     */
+    public ConcurrentRandomizedQueue(int concurrencyLevel)
+    {
+        this(concurrencyLevel, 1, 2d, 4d);
+    }
+
+    /**
+     * Creates new empty randomized queue with specified capacity policy of every segment
+     * @param concurrencyLevel expected number of threads, that use the queue at the same time
+     * @param initialCapacity initial capacity of every segment, segment never shrinks below it
+     * @param growthFactor capacity of the full segment is multiplied by this factor
+     * @param shrinkRatio segment shrinks when it is filled by 1/shrinkRatio or less
+     * @throws IllegalArgumentException if concurrency level is less or equal to 0, initial capacity is less than 1,
+     * growth factor is not more than 1 or shrink ratio is not more than growth factor
+     */
+    public ConcurrentRandomizedQueue(int concurrencyLevel, int initialCapacity, double growthFactor,
+                                     double shrinkRatio)
+    {
+        if (concurrencyLevel <= 0)
+        {
+            throw new IllegalArgumentException("Concurrency level should be more than 0");
+        }
+
+        int count = 1;
+        while (count < concurrencyLevel)                    // Round segments count up to the power of 2
+        {
+            count *= 2;
+        }
+        mask = count - 1;
+        CapacityPolicy policy = new CapacityPolicy(initialCapacity, growthFactor, shrinkRatio);
+        segments = (Segment<Item>[]) new Segment<?>[count];
+        for (int i = 0; i < count; i++)
+        {
+            segments[i] = new Segment<Item>(policy.copy()); // Every segment keeps its own statistics
+        }
+        sizes = new AtomicIntegerArray((count + 2) * PADDING);
+    }
+
+    /**
+     * Checks if queue is empty
+     * @return true if queue is empty
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     * The result is not exact if the queue is modified concurrently.
+     * @return queue size
+     */
+    public int size()
+    {
+        int result = 0;
+        for (int i = 0; i < segments.length; i++)
+        {
+            result += sizes.get(slot(i));
+        }
+        return result;
+    }
+
+    /**
+     * Adds item to the randomized queue
+     * @param item element that should be added
+     * @throws NullPointerException if element is null
+     * @throws IllegalStateException if the segment is full and already has maximum capacity
+     */
+    public void enqueue(Item item)
+    {
+        if (item == null)
+        {
+            throw new NullPointerException("Cannot add null item");
+        }
+
+        int index = homeSegment();                          // Add element to the current thread's segment
+        Segment<Item> segment = segments[index];
+        synchronized (segment)
+        {
+            segment.add(item);
+            sizes.set(slot(index), segment.size);           // Publish new segment size
+        }
+    }
+
+    /**
+     * Remove and return random element of the queue
+     * @return random removed queue element
+     * @throws NoSuchElementException if queue is empty
+     */
+    public Item dequeue()
+    {
+        while (true)
+        {
+            int index = randomSegment();
+            Segment<Item> segment = segments[index];
+            synchronized (segment)
+            {
+                if (segment.size > 0)                       // Segment may be emptied by another thread,
+                {                                           // in this case we should choose segment again
+                    Item result = segment.remove(ThreadLocalRandom.current().nextInt(segment.size));
+                    sizes.set(slot(index), segment.size);   // Publish new segment size
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns (but does not removes) a random element of the queue
+     * @return random queue element
+     * @throws NoSuchElementException if queue is empty
+     */
+    public Item sample()
+    {
+        while (true)
+        {
+            Segment<Item> segment = segments[randomSegment()];
+            synchronized (segment)
+            {
+                if (segment.size > 0)
+                {
+                    return segment.items[ThreadLocalRandom.current().nextInt(segment.size)];
+                }
+            }
+        }
+    }
+
+    /**
+     * Increases capacity of the current thread's segment, if necessary, to hold at least specified number of elements.
+     * Thread adds elements to its own segment, so the thread can add this number of elements without resizes.
+     * The segment does not shrink below this capacity until trimToSize() is called.
+     * @param capacity desired minimum capacity
+     */
+    public void ensureCapacity(int capacity)
+    {
+        Segment<Item> segment = segments[homeSegment()];
+        synchronized (segment)
+        {
+            segment.ensureCapacity(capacity);
+        }
+    }
+
+    /**
+     * Trims capacity of every segment to its current size (but not less than initial capacity).
+     * Capacity reserved by ensureCapacity() is released.
+     */
+    public void trimToSize()
+    {
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.trimToSize();
+            }
+        }
+    }
+
+    /**
+     * Returns current capacity of the queue, sum of segment capacities
+     * @return queue capacity
+     */
+    public int capacity()
+    {
+        long result = 0;
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                result += segment.items.length;
+            }
+        }
+        return (int) Math.min(result, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns sum of maximum capacities every segment ever had
+     * @return peak capacity
+     */
+    public int peakCapacity()
+    {
+        long result = 0;
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                result += segment.policy.peakCapacity();
+            }
+        }
+        return (int) Math.min(result, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the number of resizes of all segments
+     * @return resizes count
+     */
+    public long resizeCount()
+    {
+        long result = 0;
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                result += segment.policy.resizeCount();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes copied by resizes of all segments, every element reference is counted as 8 bytes
+     * @return copied bytes
+     */
+    public long bytesCopied()
+    {
+        long result = 0;
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                result += segment.policy.bytesCopied();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in random order.
+     * Iterator works with a snapshot of the queue, so it does not reflect further modifications.
+     * Iterator implementation does not support remove() operation.
+     *
+     * @return an iterator over the elements in this queue in random order
+     */
+    public Iterator<Item> iterator()
+    {
+        RandomizedQueue<Item> snapshot = new RandomizedQueue<>();
+        for (Segment<Item> segment : segments)
+        {
+            synchronized (segment)
+            {
+                for (int i = 0; i < segment.size; i++)
+                {
+                    snapshot.enqueue(segment.items[i]);
+                }
+            }
+        }
+        return snapshot.iterator();
+    }
+
+    /**
+     * Returns segment index of the current thread
+     * @return segment index
+     */
+    private int homeSegment()
+    {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32); // Spread sequential thread ids across segments
+        return hash & mask;
+    }
+
+    /**
+     * Returns index of the segment's published size in padded sizes array
+     * @param segment segment index
+     * @return index in sizes array
+     */
+    private static int slot(int segment)
+    {
+        return (segment + 1) * PADDING;                     // Skip first line to keep away from array header
+    }
+
+    /**
+     * Chooses random segment with probability proportional to its size
+     * @return random segment index
+     * @throws NoSuchElementException if queue is empty
+     */
+    private int randomSegment()
+    {
+        int total = size();
+        if (total == 0)
+        {
+            throw new NoSuchElementException("Queue is empty");
+        }
+
+        int index = ThreadLocalRandom.current().nextInt(total); // Pick random element of the whole queue
+        for (int i = 0; i < segments.length; i++)               // and find segment that contains it
+        {
+            int size = sizes.get(slot(i));
+            if (index < size)
+            {
+                return i;
+            }
+            index -= size;
+        }
+        return homeSegment();                               // Sizes were changed concurrently, segment is checked
+    }                                                       // again under the lock
+
+    /**
+     * Test method. Compares throughput of this queue and RandomizedQueue guarded by a single lock.
+     * Every thread enqueues and dequeues elements of prefilled queue. Both queues are warmed up first, and then
+     * measured in four rounds in alternating order.
+     * @param args command-line arguments. args[0] is a number of threads, args[1] is a number of operations per thread
+     */
+    public static void main(String[] args)
+    {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+
+        final RandomizedQueue<Integer> locked = new RandomizedQueue<>();
+        final ConcurrentRandomizedQueue<Integer> striped = new ConcurrentRandomizedQueue<>(threads);
+        for (int i = 0; i < 100000; i++)
+        {
+            locked.enqueue(i);
+            striped.enqueue(i);
+        }
+
+        Runnable lockedOperation = new Runnable()
+        {
+            public void run()
+            {
+                synchronized (locked)
+                {
+                    locked.enqueue(locked.dequeue());
+                }
+            }
+        };
+        Runnable stripedOperation = new Runnable()
+        {
+            public void run()
+            {
+                striped.enqueue(striped.dequeue());
+            }
+        };
+
+        benchmark(threads, operations / 10, lockedOperation);   // Warm up both queues before measuring
+        benchmark(threads, operations / 10, stripedOperation);
+
+        double lockedTime = 0;                              // Alternate the order of measurements, so none of the
+        double stripedTime = 0;                             // queues is always measured first
+        for (int round = 0; round < 4; round++)
+        {
+            if (round % 2 == 0)
+            {
+                lockedTime += benchmark(threads, operations, lockedOperation);
+                stripedTime += benchmark(threads, operations, stripedOperation);
+            }
+            else
+            {
+                stripedTime += benchmark(threads, operations, stripedOperation);
+                lockedTime += benchmark(threads, operations, lockedOperation);
+            }
+        }
+
+        double total = 4 * 2d * threads * operations;     // Four rounds of enqueue and dequeue
+        StdOut.printf("threads = %d, operations per thread = %d%n", threads, operations);
+        StdOut.printf("locked RandomizedQueue:    %.0f ops/s%n", total / lockedTime);
+        StdOut.printf("ConcurrentRandomizedQueue: %.0f ops/s%n", total / stripedTime);
+    }
+
+    /**
+     * Runs the operation in several threads at the same time
+     * @param threads number of threads
+     * @param operations number of operation calls per thread
+     * @param operation operation that should be measured
+     * @return elapsed time in seconds
+     */
+    private static double benchmark(int threads, final int operations, final Runnable operation)
+    {
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < operations; j++)
+                    {
+                        operation.run();
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers)
+        {
+            worker.start();
+        }
+        for (Thread worker : workers)
+        {
+            try
+            {
+                worker.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Benchmark was interrupted", e);
+            }
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Queue segment. Keeps elements in resizable array, all methods should be called under segment's lock.
+     * @param <Item> the type of elements held in this data structure
+     */
+    private static class Segment<Item>
+    {
+        private Item[] items;                               // Segment elements
+        private int size;                                   // Current number of the elements
+        private CapacityPolicy policy;                      // Capacity policy and resize statistics
+
+        /**
+         * Creates new empty segment
+         * @param policy capacity policy of the segment
+         */
+        private Segment(CapacityPolicy policy)
+        {
+            this.policy = policy;
+            items = (Item[]) new Object[policy.initialCapacity()];
+        }
+
+        /**
+         * Adds item to the end of the segment
+         * @param item element that should be added
+         */
+        private void add(Item item)
+        {
+            if (size == items.length)                       // If segment is full
+            {
+                resize(policy.grow(items.length));          // Grow segment capacity
+            }
+            items[size] = item;
+            size++;
+        }
+
+        /**
+         * Removes element by index, last element is moved to the empty place
+         * @param index element's index
+         * @return removed element
+         */
+        private Item remove(int index)
+        {
+            Item result = items[index];
+            int last = size - 1;
+            items[index] = items[last];                     // Set last element on empty space
+            items[last] = null;                             // Nullify last element reference to prevent loitering
+            size = last;
+            int capacity = policy.shrink(size, items.length);
+            if (capacity != items.length)                   // Shrink the segment if it is almost empty
+            {
+                resize(capacity);
+            }
+            return result;
+        }
+
+        /**
+         * Increases segment capacity, if necessary, and reserves it until trimToSize() is called
+         * @param capacity desired minimum capacity
+         */
+        private void ensureCapacity(int capacity)
+        {
+            policy.reserve(capacity);
+            if (capacity > items.length)
+            {
+                resize(capacity);
+            }
+        }
+
+        /**
+         * Trims segment capacity to its size (but not less than initial capacity) and releases reserved capacity
+         */
+        private void trimToSize()
+        {
+            int capacity = policy.trim(size);
+            if (capacity != items.length)
+            {
+                resize(capacity);
+            }
+        }
+
+        /**
+         * Changes segment capacity
+         * @param capacity new capacity
+         */
+        private void resize(int capacity)
+        {
+            Item[] newArray = (Item[]) new Object[capacity];
+            System.arraycopy(items, 0, newArray, 0, size);
+            items = newArray;
+            policy.resized(8L * size, capacity);            // Update resize statistics
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,10 @@
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -8,24 +12,47 @@ import java.util.NoSuchElementException;
  * only.
  * This queue implementation does not support adding {@code null} elements.
  *
- * This implementation supports each randomized queue operation (besides creating an iterator) in constant amortized
- * time.
- * A randomized queue containing n items uses less than 48n + 192 bytes of memory.
+ * This implementation supports each randomized queue operation in constant amortized time. Iterators are created
+ * in constant time as well.
+ * With default capacity policy a randomized queue containing n items uses less than 48n + 192 bytes of memory.
+ *
+ * Capacity policy can be configured: initial (and minimal) capacity, growth factor of the full queue and shrink
+ * ratio. The queue shrinks when it is filled by 1/shrinkRatio or less, and new capacity is size * growthFactor, so
+ * shrink ratio should be more than growth factor to prevent resizing back and forth at the boundary.
+ * The queue counts its resizes, copied bytes and peak capacity, so it can be sized by production data.
  *
  * @param <Item> the type of elements held in this data structure
  */
 public class RandomizedQueue<Item> implements Iterable<Item>
 {
+    private static final int PERMUTATION_THRESHOLD = 1 << 12;   // Smaller queues are iterated by lazy shuffle
+
     private Item[] items;                                   // Queue elements
     private int currentSize;                                // Current number of the elements
     private int fullSize;                                   // Current queue capacity
+    private CapacityPolicy policy;                          // Capacity policy and resize statistics
 
     /**
-     * Creates new empty randomized queue
+     * Creates new empty randomized queue, that starts from capacity 1, doubles when it is full and halves when it is
+     * quarter full
      */
     public RandomizedQueue()
     {
-        fullSize = 1;                                       // Start from capacity = 1
+        this(1, 2d, 4d);
+    }
+
+    /**
+     * Creates new empty randomized queue with specified capacity policy
+     * @param initialCapacity initial capacity, the queue never shrinks below it
+     * @param growthFactor capacity of the full queue is multiplied by this factor
+     * @param shrinkRatio the queue shrinks when it is filled by 1/shrinkRatio or less
+     * @throws IllegalArgumentException if initial capacity is less than 1, growth factor is not more than 1 or shrink
+     * ratio is not more than growth factor
+     */
+    public RandomizedQueue(int initialCapacity, double growthFactor, double shrinkRatio)
+    {
+        policy = new CapacityPolicy(initialCapacity, growthFactor, shrinkRatio);
+        fullSize = initialCapacity;                         // Start from initial capacity
         items = (Item[]) new Object[fullSize];              // Initialize empty items array
     }
 
@@ -51,6 +78,7 @@ public class RandomizedQueue<Item> implements Iterable<Item>
      * Adds item to the randomized queue
      * @param item element that should be added
      * @throws NullPointerException if element is null
+     * @throws IllegalStateException if the queue is full and already has maximum capacity
      */
     public void enqueue(Item item)
     {
@@ -60,25 +88,100 @@ public class RandomizedQueue<Item> implements Iterable<Item>
         }
         if (currentSize == fullSize)                        // If queue is full
         {
-            resize(2d);                                     // Double queue size
+            resize(policy.grow(fullSize));                  // Grow queue capacity
         }
         items[currentSize] = item;                          // Add new item to the randomized queue
         currentSize++;                                      // Increase size counter
     }
 
     /**
-     * Resize queue array. New array size = current size * coefficient
-     * @param coeff coefficient
+     * Increases capacity of the queue, if necessary, to hold at least specified number of elements.
+     * The queue does not shrink below this capacity until trimToSize() is called.
+     * @param capacity desired minimum capacity
      */
-    private void resize(double coeff)
+    public void ensureCapacity(int capacity)
     {
-        fullSize = (int) (fullSize*coeff);                  // Calculate new array capacity
-        Item[] newArray = (Item[]) new Object[fullSize];    // Create new array
-        for (int i = 0; i < currentSize; i++)               // Copy every item from old array to new array
+        policy.reserve(capacity);
+        if (capacity > fullSize)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Trims capacity of the queue to its current size (but not less than initial capacity).
+     * Capacity reserved by ensureCapacity() is released.
+     */
+    public void trimToSize()
+    {
+        int capacity = policy.trim(currentSize);
+        if (capacity != fullSize)
         {
-            newArray[i] = items[i];
+            resize(capacity);
         }
+    }
+
+    /**
+     * Returns current capacity of the queue
+     * @return queue capacity
+     */
+    public int capacity()
+    {
+        return fullSize;
+    }
+
+    /**
+     * Returns maximum capacity the queue ever had
+     * @return peak capacity
+     */
+    public int peakCapacity()
+    {
+        return policy.peakCapacity();
+    }
+
+    /**
+     * Returns the number of resizes of the queue array
+     * @return resizes count
+     */
+    public long resizeCount()
+    {
+        return policy.resizeCount();
+    }
+
+    /**
+     * Returns the number of bytes copied by resizes, every element reference is counted as 8 bytes
+     * @return copied bytes
+     */
+    public long bytesCopied()
+    {
+        return policy.bytesCopied();
+    }
+
+    /**
+     * Shrinks the queue if it is filled by 1/shrinkRatio or less. New capacity is size * growthFactor, so the queue
+     * should grow or shrink noticeably before the next resize.
+     */
+    private void shrinkIfNeeded()
+    {
+        int capacity = policy.shrink(currentSize, fullSize);
+        if (capacity != fullSize)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Resize queue array
+     * @param capacity new capacity
+     */
+    private void resize(int capacity)
+    {
+        fullSize = capacity;                                // Save new array capacity
+        Item[] newArray = (Item[]) new Object[fullSize];    // Create new array
+        System.arraycopy(items, 0, newArray, 0, currentSize);   // Copy every item from old array to new array
         items = newArray;                                   // Change old array to new array
+
+        policy.resized(8L * currentSize, fullSize);         // Update resize statistics
     }
 
     /**
@@ -97,10 +200,7 @@ public class RandomizedQueue<Item> implements Iterable<Item>
         Item result = items[index];                         // Get element value
         items[index] = items[--currentSize];                // Set last element on empty space, decrease element number
         items[currentSize] = null;                          // Nullify last element reference to prevent loitering
-        if (fullSize >= 4 && fullSize/currentSize >= 4)     // If the queue is quarter full
-        {
-            resize(0.5d);                                   // Halve queue size
-        }
+        shrinkIfNeeded();                                   // Shrink the queue if it is almost empty
         return result;
     }
 
@@ -119,9 +219,115 @@ public class RandomizedQueue<Item> implements Iterable<Item>
         return items[StdRandom.uniform(currentSize)];         // return uniformly random element's index of the queue
     }
 
+    /**
+     * Returns (but does not remove) k distinct random elements of the queue.
+     * Takes time proportional to k and does not change the queue.
+     * @param k number of elements to return
+     * @return list of k distinct random queue elements
+     * @throws IllegalArgumentException if k is negative
+     * @throws NoSuchElementException if queue contains less than k elements
+     */
+    public List<Item> sample(int k)
+    {
+        checkBatchSize(k);
+
+        int[] swaps = shuffleTail(k);                       // Move k random elements to the end of the queue
+        Item[] result = copyTail(k);
+        for (int i = 0; i < k; i++)                         // Undo swaps in reverse order to restore the queue
+        {
+            swap(currentSize - k + i, swaps[i]);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Removes and returns k distinct random elements of the queue.
+     * Takes time proportional to k (plus one resize if the queue becomes almost empty).
+     * @param k number of elements to remove
+     * @return list of k distinct random removed queue elements
+     * @throws IllegalArgumentException if k is negative
+     * @throws NoSuchElementException if queue contains less than k elements
+     */
+    public List<Item> dequeue(int k)
+    {
+        checkBatchSize(k);
+
+        shuffleTail(k);                                     // Move k random elements to the end of the queue
+        Item[] result = copyTail(k);
+        for (int i = currentSize - k; i < currentSize; i++) // Nullify removed elements to prevent loitering
+        {
+            items[i] = null;
+        }
+        currentSize -= k;
+
+        shrinkIfNeeded();                                   // Check capacity once for the whole batch
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Checks that k elements can be taken from the queue
+     * @param k number of elements
+     * @throws IllegalArgumentException if k is negative
+     * @throws NoSuchElementException if queue contains less than k elements
+     */
+    private void checkBatchSize(int k)
+    {
+        if (k < 0)
+        {
+            throw new IllegalArgumentException("Number of elements should not be negative");
+        }
+        if (k > currentSize)
+        {
+            throw new NoSuchElementException("Queue contains less than " + k + " elements");
+        }
+    }
+
+    /**
+     * Partial Fisher-Yates shuffle: moves k uniformly random elements to the last k positions of the queue
+     * @param k number of elements
+     * @return swapped indexes, i-th value was swapped with position (currentSize - k + i)
+     */
+    private int[] shuffleTail(int k)
+    {
+        int[] swaps = new int[k];
+        for (int i = k - 1; i >= 0; i--)
+        {
+            int position = currentSize - k + i;             // Position is filled from the end of the queue
+            swaps[i] = StdRandom.uniform(position + 1);     // by uniformly random element from the rest ones
+            swap(position, swaps[i]);
+        }
+        return swaps;
+    }
+
+    /**
+     * Copies last k elements of the queue to the new array
+     * @param k number of elements
+     * @return array of last k elements
+     */
+    private Item[] copyTail(int k)
+    {
+        Item[] result = (Item[]) new Object[k];
+        System.arraycopy(items, currentSize - k, result, 0, k);
+        return result;
+    }
+
+    /**
+     * Swaps two elements of the queue
+     * @param i first element's index
+     * @param j second element's index
+     */
+    private void swap(int i, int j)
+    {
+        Item temp = items[i];
+        items[i] = items[j];
+        items[j] = temp;
+    }
+
     /**
      * Returns an iterator over the elements in this queue in random order.
      * Iterator implementation does not support remove() operation.
+     * The order is shuffled lazily: every call of next() performs one step of Fisher-Yates shuffle, so taking only
+     * the first few elements of a large queue is cheap.
      *
      * @return an iterator over the elements in this deque in random order
      */
@@ -130,26 +336,53 @@ public class RandomizedQueue<Item> implements Iterable<Item>
         return new RandomizedQueueIterator();
     }
 
+    /**
+     * Returns an iterator over the elements in this queue in random order that uses constant amount of extra memory.
+     * Instead of shuffling indexes, the iterator walks through pseudo-random permutation of the indexes.
+     * It is cheap to create many such iterators at the same time.
+     * Feistel network is noticeably biased on small domains, so queues with less than 4096 elements are iterated
+     * by lazy Fisher-Yates shuffle, which memory is bounded by the same constant.
+     * Iterator implementation does not support remove() operation.
+     *
+     * @return an iterator over the elements in this deque in random order
+     */
+    public Iterator<Item> permutationIterator()
+    {
+        if (currentSize < PERMUTATION_THRESHOLD)
+        {
+            return new RandomizedQueueIterator();
+        }
+        return new PermutationIterator();
+    }
+
     public static void main(String[] args)
     {
     }
 
     /**
      * Implementation of the iterator over the elements in this queue.
-     * Iterator implementation supports operations next() and hasNext() in constant worst-case time and construction
-     * in linear time. Iterator uses a linear amount of extra memory.
+     * Iterator implementation supports construction and operation hasNext() in constant worst-case time and
+     * operation next() in constant amortized expected time.
+     * While few elements are returned, only displaced positions of the shuffled indexes are kept in a hash map, so
+     * taking a few elements of a large queue is cheap. Every map entry takes tens of bytes, so when the map holds more
+     * than 1/DENSE_FRACTION of the positions, the iterator switches to a plain array of indexes (4n bytes).
      */
     private class RandomizedQueueIterator implements Iterator<Item>
     {
-        private int[] indexes;                              // Keeps indexes of the queue in random order
+        private static final int DENSE_FRACTION = 32;       // Map is replaced by array when it holds 1/32 of indexes
+
+        private Map<Integer, Integer> displaced = new HashMap<>();  // Shuffled indexes that differ from their
+                                                                    // positions (position -> index), sparse mode
+        private int[] indexes;                              // Shuffled indexes, dense mode (null in sparse mode)
+        private int length;                                 // Number of queue elements at the iterator creation
         private int counter;                                // Iterator counter
 
         /**
-         * Creates (and shuffles) new iterator
+         * Creates new iterator. Indexes are not shuffled here, every next() call makes one shuffle step
          */
         public RandomizedQueueIterator()
         {
-            shuffle();
+            length = currentSize;
         }
 
         @Override
@@ -159,20 +392,181 @@ public class RandomizedQueue<Item> implements Iterable<Item>
          */
         public boolean hasNext()
         {
-            return counter < indexes.length;
+            return counter < length;
         }
 
         /**
-         * Shuffles indexes array for random order to randomzied queue values
+         * Returns index that is kept at specified position of the shuffled indexes array
+         * @param position position in indexes array
+         * @return queue element's index
          */
-        private void shuffle()
+        private int indexAt(int position)
         {
-            indexes = new int[currentSize];                 // Initialize new indexes array
-            for (int i = 0; i < currentSize; i++)           // Set values from 0 to current queue size (exclusively)
+            if (indexes != null)
+            {
+                return indexes[position];
+            }
+            Integer index = displaced.get(position);
+            return index == null ? position : index;        // Not swapped positions keep their own index
+        }
+
+        @Override
+        /**
+         * Returns next random element of the randomized queue
+         * @return random element
+         * @throws NoSuchElementException if there are no more items to return
+         */
+        public Item next()
+        {
+            if (counter >= length || size() == 0)
+                throw new NoSuchElementException("Iterator has not next element");
+
+            int swap = counter + StdRandom.uniform(length - counter);   // Pick random index from the rest ones
+            int result = indexAt(swap);                     // One step of Fisher-Yates shuffle:
+            if (indexes != null)                            // move current index to the picked position
+            {
+                indexes[swap] = indexes[counter];
+            }
+            else
+            {
+                if (swap != counter)
+                {
+                    displaced.put(swap, indexAt(counter));
+                }
+                displaced.remove(counter);                  // Current position is never read again
+                if (displaced.size() > length / DENSE_FRACTION)
+                {
+                    makeDense();
+                }
+            }
+            counter++;
+            return items[result];
+        }
+
+        /**
+         * Moves shuffled indexes from the map to the array. Takes time proportional to the number of elements, that
+         * is amortized by at least length/DENSE_FRACTION previous calls of next().
+         */
+        private void makeDense()
+        {
+            indexes = new int[length];
+            for (int i = counter + 1; i < length; i++)      // Positions before the next one are never read again
             {
                 indexes[i] = i;
             }
-            StdRandom.shuffle(indexes);                     // Shuffle indexes
+            for (Map.Entry<Integer, Integer> entry : displaced.entrySet())
+            {
+                indexes[entry.getKey()] = entry.getValue();
+            }
+            displaced = null;
+        }
+
+        @Override
+        /**
+         * This iterator does not support remove() operation.
+         * @throws UnsupportedOperationException always
+         */
+        public void remove()
+        {
+            throw new UnsupportedOperationException("Prohibited to remove objects from iterator");
+        }
+    }
+
+    /**
+     * Implementation of the iterator over the elements in this queue that uses constant amount of extra memory.
+     *
+     * Iterator walks through indexes from 0 to n-1 and maps every index by Feistel network with random round keys.
+     * Feistel network is a bijection over [0, 4^k) where 4^k is the smallest power of 4 that is not less than n.
+     * If mapped index is out of queue bounds, it is mapped again (cycle-walking) until it gets into [0, n).
+     * As the domain is less than 4n, next() takes constant expected time. The domain can exceed 2^31, so values are
+     * kept in long.
+     */
+    private class PermutationIterator implements Iterator<Item>
+    {
+        private static final int ROUNDS = 8;                // Number of Feistel network rounds
+
+        private int[] keys;                                 // Random round keys
+        private int halfBits;                               // Number of bits in each half of the index
+        private int halfMask;                               // Bit mask of the half of the index
+        private int length;                                 // Number of queue elements at the iterator creation
+        private int counter;                                // Iterator counter
+
+        /**
+         * Creates new iterator with random permutation
+         */
+        public PermutationIterator()
+        {
+            length = currentSize;
+            halfBits = 1;
+            while (1L << (2 * halfBits) < length)           // Find the smallest even-bit domain to keep all indexes
+            {
+                halfBits++;
+            }
+            halfMask = (1 << halfBits) - 1;
+
+            keys = new int[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++)
+            {
+                keys[i] = StdRandom.uniform(Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        /**
+         * Checks if iterator has next element
+         * @return true if there is at least one more element
+         */
+        public boolean hasNext()
+        {
+            return counter < length;
+        }
+
+        /**
+         * Maps index into its position of the pseudo-random permutation
+         * @param index index from 0 to n-1
+         * @return permuted index from 0 to n-1
+         */
+        private int permute(int index)
+        {
+            long value = index;
+            do
+            {
+                value = encrypt(value);                     // Walk the cycle until we get into queue bounds
+            } while (value >= length);
+            return (int) value;
+        }
+
+        /**
+         * Applies Feistel network to the value
+         * @param value value from 0 to 4^k - 1
+         * @return encrypted value from 0 to 4^k - 1
+         */
+        private long encrypt(long value)
+        {
+            int left = (int) (value >>> halfBits);
+            int right = (int) (value & halfMask);
+            for (int i = 0; i < ROUNDS; i++)
+            {
+                int next = left ^ round(right, keys[i]);
+                left = right;
+                right = next;
+            }
+            return ((long) left << halfBits) | right;
+        }
+
+        /**
+         * Feistel round function, mixes half of the value with round key
+         * @param half half of the value
+         * @param key round key
+         * @return mixed value that fits into half of the value
+         */
+        private int round(int half, int key)
+        {
+            int x = (half ^ key) * 0x9E3779B1;
+            x ^= x >>> 15;
+            x *= 0x85EBCA77;
+            x ^= x >>> 13;
+            return x & halfMask;
         }
 
         @Override
@@ -183,9 +577,9 @@ public class RandomizedQueue<Item> implements Iterable<Item>
          */
         public Item next()
         {
-            if (counter >= indexes.length || size() == 0)
+            if (counter >= length || size() == 0)
                 throw new NoSuchElementException("Iterator has not next element");
-            return items[indexes[counter++]];               // Get next index and get queue item by the index
+            return items[permute(counter++)];               // Get next index and get queue item by the permuted index
         }
 
         @Override
@@ -2,6 +2,22 @@ import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * A client program that takes a command-line integer k, reads in sequence of N string from standart input
  * using StdIn.readString(); and prints out exactly k of them, uniformly at random. Each item from the sequence
@@ -9,19 +25,61 @@ import edu.princeton.cs.algs4.StdRandom;
  * Assume that 0 <= k <= N, where N is the number of standard input.
  * The running time of Subset is linear in the size of the input. It uses constant amount of memory and one
  * RandomizedQueue object of maximum size at most k.
+ *
+ * If the second command-line argument is "--fast", Subset uses skip-based reservoir sampling (Algorithm L) and reads
+ * the input with TokenScanner. It draws random numbers only O(k log(N/k)) times and creates String objects only for
+ * the tokens that are added to the queue.
+ *
+ * If the second command-line argument is "--parallel", Subset reads the file args[2] instead of standard input.
+ * The file is split into shards at token boundaries, every shard is sampled by separate thread (args[3] threads,
+ * one per processor by default), and shard samples are merged into uniform k-subset of the whole file.
  */
 public class Subset
 {
     /**
      * Reads N strings and writes k random strings from the input.
-     * It is expected that args[0] is k (number of random strings to output)
+     * It is expected that args[0] is k (number of random strings to output), optional args[1] is "--fast" or
+     * "--parallel" (followed by file name and optional number of threads)
      * @param args command-line args
+     * @throws IllegalArgumentException if "--parallel" is not followed by file name
      */
     public static void main(String[] args)
+    {
+        int k = Integer.parseInt(args[0]);                      // Number of random strings to output
+        RandomizedQueue<String> rq;
+        if (args.length > 1 && args[1].equals("--fast"))
+        {
+            rq = sampleFast(k, new TokenScanner(System.in));
+        }
+        else if (args.length > 1 && args[1].equals("--parallel"))
+        {
+            if (args.length < 3)
+            {
+                throw new IllegalArgumentException("Please, provide file name for parallel mode");
+            }
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            rq = sampleParallel(k, Paths.get(args[2]), threads);
+        }
+        else
+        {
+            rq = sample(k);
+        }
+
+        for (String s : rq.dequeue(k))                          // output K random strings
+        {
+            StdOut.println(s);
+        }
+    }
+
+    /**
+     * Reads strings from standard input and keeps k random strings of them
+     * @param k number of random strings to keep
+     * @return queue of k random strings
+     */
+    private static RandomizedQueue<String> sample(int k)
     {
         RandomizedQueue<String> rq = new RandomizedQueue<>();   // Create new RandomizedQueue
         int counter = 0;                                        // Input strings counter
-        int k = Integer.parseInt(args[0]);                      // Number of random strings to output
 
         /**
          * It is possible to solve the task using only one RandomizedQueue of maximum size of k.
@@ -64,11 +122,204 @@ public class Subset
             }
             counter++;                                      // increase input strings counter
         }
+        return rq;
+    }
 
+    /**
+     * Reads tokens by the scanner and keeps k random tokens of them using Algorithm L.
+     *
+     * Instead of drawing random number for every token, Algorithm L draws the number of tokens that should be skipped
+     * before the next replacement. W is distributed as the largest of k uniform random values (the reservoir
+     * threshold), so the number of skipped tokens has geometric distribution with parameter W.
+     * The expected number of replacements is O(k log(N/k)).
+     *
+     * @param k number of random tokens to keep
+     * @param scanner input tokens scanner
+     * @return queue of k random tokens
+     */
+    static RandomizedQueue<String> sampleFast(int k, TokenScanner scanner)
+    {
+        RandomizedQueue<String> rq = new RandomizedQueue<>();
+        for (int i = 0; i < k && scanner.hasNext(); i++)    // Add first k tokens to the queue
+        {
+            rq.enqueue(scanner.next());
+        }
+        if (k == 0 || rq.size() < k)                        // Nothing to replace or input contains less than
+        {                                                   // k tokens
+            return rq;
+        }
+
+        double w = Math.exp(Math.log(random()) / k);
+        while (true)
+        {
+            double skip = Math.floor(Math.log(random()) / Math.log(1 - w));
+            for (long i = 0; i < skip; i++)                 // Skip tokens without creating strings
+            {
+                if (!scanner.skip())
+                {
+                    return rq;
+                }
+            }
+            if (!scanner.hasNext())
+            {
+                return rq;
+            }
+            rq.dequeue();                                   // Replace random queue element by the next token
+            rq.enqueue(scanner.next());
+            w *= Math.exp(Math.log(random()) / k);
+        }
+    }
 
-        for (int i = 0; i < k; i++)                         // output K random strings
+    /**
+     * Reads tokens from the file in several threads and keeps k random tokens of them.
+     *
+     * The file is split into equal byte ranges. Every token belongs to the range where it starts, so the ranges
+     * contain disjoint sets of tokens. Every range is sampled by Algorithm L in its own thread, the result is uniform
+     * k-subset (or all tokens, if there are less than k of them) of the range and the number of tokens in the range.
+     *
+     * Then we choose k tokens of the whole file without replacement: every next token is taken from the range with
+     * possibility proportional to the number of not chosen tokens in it. So the number of tokens taken from every
+     * range has the same (multivariate hypergeometric) distribution as for k-subset of the whole file, and the tokens
+     * themselves are taken uniformly from the range sample. The merged result is uniform k-subset of the whole file.
+     *
+     * @param k number of random tokens to keep
+     * @param file input file
+     * @param shards number of shards (and threads)
+     * @return queue of k random tokens
+     * @throws IllegalArgumentException if number of shards is less or equal to 0
+     */
+    static RandomizedQueue<String> sampleParallel(int k, Path file, int shards)
+    {
+        if (shards <= 0)
+        {
+            throw new IllegalArgumentException("Number of threads should be more than 0");
+        }
+
+        List<Shard> samples = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(shards);
+        try
+        {
+            long size = Files.size(file);
+            List<Future<Shard>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++)                // Sample every range in its own thread
+            {
+                final long start = size * i / shards;
+                final long end = size * (i + 1) / shards;
+                futures.add(pool.submit(new Callable<Shard>()
+                {
+                    public Shard call() throws IOException
+                    {
+                        return sampleShard(k, file, start, end);
+                    }
+                }));
+            }
+            for (Future<Shard> future : futures)
+            {
+                samples.add(future.get());
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("Failed to sample file shard", e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sampling was interrupted", e);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        long total = 0;                                     // Number of not chosen tokens in the whole file
+        long[] left = new long[samples.size()];             // Number of not chosen tokens in every range
+        int[] taken = new int[samples.size()];              // Number of chosen tokens from every range
+        for (int i = 0; i < left.length; i++)
+        {
+            left[i] = samples.get(i).count;
+            total += left[i];
+        }
+        for (int chosen = 0; chosen < k && total > 0; chosen++)
+        {
+            long index = StdRandom.uniform(total);          // Pick random not chosen token of the file
+            int shard = 0;                                  // and find the range that contains it
+            while (index >= left[shard])
+            {
+                index -= left[shard];
+                shard++;
+            }
+            taken[shard]++;
+            left[shard]--;
+            total--;
+        }
+
+        RandomizedQueue<String> rq = new RandomizedQueue<>();
+        for (int i = 0; i < taken.length; i++)              // Take random tokens from every range sample
+        {
+            for (String s : samples.get(i).reservoir.dequeue(taken[i]))
+            {
+                rq.enqueue(s);
+            }
+        }
+        return rq;
+    }
+
+    /**
+     * Samples tokens that start in the byte range of the file
+     * @param k number of random tokens to keep
+     * @param file input file
+     * @param start first byte of the range
+     * @param end byte after the last byte of the range
+     * @return sample of the range and number of tokens in it
+     * @throws IOException if file cannot be read
+     */
+    private static Shard sampleShard(int k, Path file, long start, long end) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long from = start > 0 ? start - 1 : 0;          // Start from previous byte to see if range starts
+            channel.position(from);                         // inside the token
+            TokenScanner scanner = new TokenScanner(Channels.newInputStream(channel), end - from);
+            if (start > 0)
+            {
+                scanner.skipPartialToken();                 // Token that started before the range is not ours
+            }
+            RandomizedQueue<String> reservoir = sampleFast(k, scanner);
+            return new Shard(reservoir, scanner.count());
+        }
+    }
+
+    /**
+     * Returns uniformly random value from 0 (exclusively) to 1 (inclusively), so its logarithm is always finite
+     * @return random value
+     */
+    private static double random()
+    {
+        return 1d - StdRandom.uniform();
+    }
+
+    /**
+     * Result of sampling of one file range
+     */
+    private static class Shard
+    {
+        private RandomizedQueue<String> reservoir;          // Uniform sample of at most k tokens of the range
+        private long count;                                 // Number of tokens in the range
+
+        /**
+         * Creates new shard result
+         * @param reservoir sample of the range
+         * @param count number of tokens in the range
+         */
+        public Shard(RandomizedQueue<String> reservoir, long count)
         {
-            StdOut.println(rq.dequeue());
+            this.reservoir = reservoir;
+            this.count = count;
         }
     }
 }
\ No newline at end of file
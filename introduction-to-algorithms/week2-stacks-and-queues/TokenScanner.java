@@ -0,0 +1,173 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads whitespace-separated tokens from a byte stream.
+ * Unlike StdIn.readString(), tokens can be skipped without creating String objects, so only tokens that are really
+ * needed are materialized. Input is read through a byte buffer and decoded as UTF-8, tokens are separated by ASCII
+ * whitespace characters.
+ *
+ * Scanner can be limited to the part of the input: it returns only tokens that start before the end of the part,
+ * but the last token is read till its end even if it exceeds the part.
+ */
+public class TokenScanner
+{
+    private static final int BUFFER_SIZE = 1 << 16;         // Size of the input buffer
+
+    private InputStream in;                                 // Input stream
+    private byte[] buffer = new byte[BUFFER_SIZE];          // Input buffer
+    private int position;                                   // Position of the next unread byte in the buffer
+    private int limit;                                      // Number of bytes in the buffer
+    private long offset;                                    // Input offset of the first byte of the buffer
+    private long end = Long.MAX_VALUE;                      // Tokens should start before this input offset
+    private long count;                                     // Number of tokens that were read or skipped
+    private byte[] token = new byte[64];                    // Bytes of the token that is being materialized
+
+    /**
+     * Creates new scanner
+     * @param in input stream
+     */
+    public TokenScanner(InputStream in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Creates new scanner that returns only tokens which start in the first {@code length} bytes of the input
+     * @param in input stream
+     * @param length number of bytes where tokens can start
+     */
+    public TokenScanner(InputStream in, long length)
+    {
+        this.in = in;
+        this.end = length;
+    }
+
+    /**
+     * Returns the number of tokens that were read or skipped
+     * @return tokens count
+     */
+    public long count()
+    {
+        return count;
+    }
+
+    /**
+     * Skips the rest of the token if scanner is positioned inside it. Skipped bytes are not counted as a token.
+     * It is used to start reading from an arbitrary offset: token that started before the offset is skipped.
+     */
+    public void skipPartialToken()
+    {
+        while (position < limit || fill())
+        {
+            if (isWhitespace(buffer[position]))
+            {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Checks if there is one more token in the input
+     * @return true if there is at least one more token
+     */
+    public boolean hasNext()
+    {
+        while (true)
+        {
+            if (position == limit && !fill())               // Refill buffer if needed
+            {
+                return false;
+            }
+            while (position < limit)                        // Skip whitespaces before the token
+            {
+                if (!isWhitespace(buffer[position]))
+                {
+                    return offset + position < end;         // Check that token starts in the scanned part
+                }
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Skips next token without creating String object
+     * @return false if there are no more tokens
+     */
+    public boolean skip()
+    {
+        if (!hasNext())
+        {
+            return false;
+        }
+        count++;
+        skipPartialToken();                                 // Skip bytes until whitespace or end of the input
+        return true;
+    }
+
+    /**
+     * Reads next token
+     * @return next token
+     * @throws NoSuchElementException if there are no more tokens
+     */
+    public String next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException("No more tokens in the input");
+        }
+
+        int length = 0;
+        while (position < limit || fill())                  // Copy bytes until whitespace or end of the input
+        {
+            byte b = buffer[position];
+            if (isWhitespace(b))
+            {
+                break;
+            }
+            if (length == token.length)                     // Double token buffer if it is full
+            {
+                byte[] newToken = new byte[2 * length];
+                System.arraycopy(token, 0, newToken, 0, length);
+                token = newToken;
+            }
+            token[length++] = b;
+            position++;
+        }
+        count++;
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads next part of the input to the buffer
+     * @return false if there is no more input
+     */
+    private boolean fill()
+    {
+        try
+        {
+            offset += limit;
+            position = 0;
+            limit = Math.max(in.read(buffer), 0);
+            return limit > 0;
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks if byte is ASCII whitespace
+     * @param b byte
+     * @return true if byte is space, tab, line feed, carriage return, vertical tab or form feed
+     */
+    private static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == 0x0B || b == '\f';
+    }
+}
\ No newline at end of file
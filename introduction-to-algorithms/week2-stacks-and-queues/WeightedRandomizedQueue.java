@@ -0,0 +1,357 @@
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements weighted randomized queue. Every element has positive weight, and element is removed (or sampled) with
+ * probability proportional to its weight.
+ * This queue implementation does not support adding {@code null} elements and equal elements.
+ *
+ * Elements are kept in array like in RandomizedQueue, removed element is replaced by the last one. Weights are kept
+ * in Fenwick (binary indexed) tree laid out parallel to the elements array, so prefix sums of the weights can be
+ * found and updated in logarithmic time.
+ *
+ * This implementation supports enqueue(), dequeue(), sample() and setWeight() in logarithmic amortized time.
+ *
+ * Capacity policy can be configured like in RandomizedQueue. Every resize copies elements and weights and rebuilds
+ * the tree, so copied bytes are counted as 16 bytes per element.
+ *
+ * @param <Item> the type of elements held in this data structure
+ */
+public class WeightedRandomizedQueue<Item> implements Iterable<Item>
+{
+    private Item[] items;                                   // Queue elements
+    private double[] weights;                               // Elements' weights, weights[i] is weight of items[i]
+    private double[] tree;                                  // Fenwick tree of weights, tree[i] keeps sum of weights
+                                                            // from i - lowbit(i) to i - 1 (1-based tree indexes)
+    private Map<Item, Integer> positions;                   // Index of every element in items array
+    private int currentSize;                                // Current number of the elements
+    private int fullSize;                                   // Current queue capacity
+    private CapacityPolicy policy;                          // Capacity policy and resize statistics
+
+    /**
+     * Creates new empty weighted randomized queue, that starts from capacity 1, doubles when it is full and halves
+     * when it is quarter full
+     */
+    public WeightedRandomizedQueue()
+    {
+        this(1, 2d, 4d);
+    }
+
+    /**
+     * Creates new empty weighted randomized queue with specified capacity policy
+     * @param initialCapacity initial capacity, the queue never shrinks below it
+     * @param growthFactor capacity of the full queue is multiplied by this factor
+     * @param shrinkRatio the queue shrinks when it is filled by 1/shrinkRatio or less
+     * @throws IllegalArgumentException if initial capacity is less than 1, growth factor is not more than 1 or shrink
+     * ratio is not more than growth factor
+     */
+    public WeightedRandomizedQueue(int initialCapacity, double growthFactor, double shrinkRatio)
+    {
+        policy = new CapacityPolicy(initialCapacity, growthFactor, shrinkRatio);
+        fullSize = initialCapacity;                         // Start from initial capacity
+        items = (Item[]) new Object[fullSize];
+        weights = new double[fullSize];
+        tree = new double[fullSize + 1];
+        positions = new HashMap<>();
+    }
+
+    /**
+     * Checks if queue is empty
+     * @return true if queue is empty
+     */
+    public boolean isEmpty()
+    {
+        return currentSize == 0;
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     * @return queue size
+     */
+    public int size()
+    {
+        return currentSize;
+    }
+
+    /**
+     * Adds item with specified weight to the queue
+     * @param item element that should be added
+     * @param weight element's weight
+     * @throws NullPointerException if element is null
+     * @throws IllegalArgumentException if weight is not positive or queue already contains the element
+     * @throws IllegalStateException if the queue is full and already has maximum capacity
+     */
+    public void enqueue(Item item, double weight)
+    {
+        if (item == null)
+        {
+            throw new NullPointerException("Cannot add null item");
+        }
+        checkWeight(weight);
+        if (positions.containsKey(item))
+        {
+            throw new IllegalArgumentException("Queue already contains the item");
+        }
+
+        if (currentSize == fullSize)                        // If queue is full
+        {
+            resize(policy.grow(fullSize));                  // Grow queue capacity
+        }
+        items[currentSize] = item;                          // Add new item to the end of the queue
+        positions.put(item, currentSize);
+        setWeightAt(currentSize, weight);
+        currentSize++;
+    }
+
+    /**
+     * Changes weight of the element
+     * @param item queue element
+     * @param weight new weight
+     * @throws NoSuchElementException if queue does not contain the element
+     * @throws IllegalArgumentException if weight is not positive
+     */
+    public void setWeight(Item item, double weight)
+    {
+        checkWeight(weight);
+        Integer index = positions.get(item);
+        if (index == null)
+        {
+            throw new NoSuchElementException("Queue does not contain the item");
+        }
+        setWeightAt(index, weight);
+    }
+
+    /**
+     * Returns weight of the element
+     * @param item queue element
+     * @return element's weight
+     * @throws NoSuchElementException if queue does not contain the element
+     */
+    public double weight(Item item)
+    {
+        Integer index = positions.get(item);
+        if (index == null)
+        {
+            throw new NoSuchElementException("Queue does not contain the item");
+        }
+        return weights[index];
+    }
+
+    /**
+     * Remove and return random element of the queue, probability of every element is proportional to its weight
+     * @return random removed queue element
+     * @throws NoSuchElementException if queue is empty
+     */
+    public Item dequeue()
+    {
+        if (isEmpty())
+        {
+            throw new NoSuchElementException("Queue is empty");
+        }
+
+        int index = randomIndex();                          // Get weighted random element's index of the queue
+        Item result = items[index];
+        int last = --currentSize;
+        if (index != last)                                  // Set last element on empty space
+        {
+            items[index] = items[last];
+            positions.put(items[index], index);
+            setWeightAt(index, weights[last]);
+        }
+        setWeightAt(last, 0d);
+        items[last] = null;                                 // Nullify last element reference to prevent loitering
+        positions.remove(result);
+
+        int capacity = policy.shrink(currentSize, fullSize);
+        if (capacity != fullSize)                           // Shrink the queue if it is almost empty
+        {
+            resize(capacity);
+        }
+        return result;
+    }
+
+    /**
+     * Returns (but does not removes) a random element of the queue, probability of every element is proportional
+     * to its weight
+     * @return random queue element
+     * @throws NoSuchElementException if queue is empty
+     */
+    public Item sample()
+    {
+        if (isEmpty())
+        {
+            throw new NoSuchElementException("Queue is empty");
+        }
+
+        return items[randomIndex()];
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in uniformly random order (weights are not used).
+     * Iterator works with a snapshot of the queue.
+     * Iterator implementation does not support remove() operation.
+     *
+     * @return an iterator over the elements in this queue in random order
+     */
+    public Iterator<Item> iterator()
+    {
+        RandomizedQueue<Item> snapshot = new RandomizedQueue<>();
+        for (int i = 0; i < currentSize; i++)
+        {
+            snapshot.enqueue(items[i]);
+        }
+        return snapshot.iterator();
+    }
+
+    /**
+     * Increases capacity of the queue, if necessary, to hold at least specified number of elements.
+     * The queue does not shrink below this capacity until trimToSize() is called.
+     * @param capacity desired minimum capacity
+     */
+    public void ensureCapacity(int capacity)
+    {
+        policy.reserve(capacity);
+        if (capacity > fullSize)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Trims capacity of the queue to its current size (but not less than initial capacity).
+     * Capacity reserved by ensureCapacity() is released.
+     */
+    public void trimToSize()
+    {
+        int capacity = policy.trim(currentSize);
+        if (capacity != fullSize)
+        {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * Returns current capacity of the queue
+     * @return queue capacity
+     */
+    public int capacity()
+    {
+        return fullSize;
+    }
+
+    /**
+     * Returns maximum capacity the queue ever had
+     * @return peak capacity
+     */
+    public int peakCapacity()
+    {
+        return policy.peakCapacity();
+    }
+
+    /**
+     * Returns the number of resizes of the queue arrays
+     * @return resizes count
+     */
+    public long resizeCount()
+    {
+        return policy.resizeCount();
+    }
+
+    /**
+     * Returns the number of bytes copied by resizes, every element is counted as 16 bytes (reference and weight)
+     * @return copied bytes
+     */
+    public long bytesCopied()
+    {
+        return policy.bytesCopied();
+    }
+
+    /**
+     * Checks that weight is positive and finite
+     * @param weight element's weight
+     * @throws IllegalArgumentException if weight is not positive or is not finite
+     */
+    private void checkWeight(double weight)
+    {
+        if (!(weight > 0) || Double.isInfinite(weight))
+        {
+            throw new IllegalArgumentException("Weight should be positive finite number");
+        }
+    }
+
+    /**
+     * Sets weight of the element by its index and updates Fenwick tree
+     * @param index element's index
+     * @param weight new weight
+     */
+    private void setWeightAt(int index, double weight)
+    {
+        double delta = weight - weights[index];
+        weights[index] = weight;
+        for (int i = index + 1; i <= fullSize; i += i & -i) // Update every tree node that covers the index
+        {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Picks random element's index with probability proportional to element's weight
+     * @return random index
+     */
+    private int randomIndex()
+    {
+        double total = 0;
+        for (int i = currentSize; i > 0; i -= i & -i)       // Sum of all weights
+        {
+            total += tree[i];
+        }
+
+        double value = StdRandom.uniform() * total;         // Find the first index with prefix sum more than value
+        int position = 0;                                   // by descending the tree from the highest power of 2
+        for (int step = Integer.highestOneBit(fullSize); step > 0; step /= 2)
+        {
+            int next = position + step;
+            if (next <= currentSize && tree[next] <= value)
+            {
+                position = next;
+                value -= tree[next];
+            }
+        }
+        return Math.min(position, currentSize - 1);         // Protect from floating point rounding errors
+    }
+
+    /**
+     * Resizes queue arrays and rebuilds Fenwick tree
+     * @param capacity new capacity
+     */
+    private void resize(int capacity)
+    {
+        fullSize = capacity;
+        Item[] newItems = (Item[]) new Object[capacity];
+        double[] newWeights = new double[capacity];
+        System.arraycopy(items, 0, newItems, 0, currentSize);
+        System.arraycopy(weights, 0, newWeights, 0, currentSize);
+        items = newItems;
+        weights = newWeights;
+        policy.resized(16L * currentSize, capacity);        // Update resize statistics
+
+        tree = new double[capacity + 1];                    // Build new tree in linear time, it also removes
+        for (int i = 1; i <= capacity; i++)                 // accumulated floating point errors
+        {
+            tree[i] += weights[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity)
+            {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    public static void main(String[] args)
+    {
+    }
+}
\ No newline at end of file